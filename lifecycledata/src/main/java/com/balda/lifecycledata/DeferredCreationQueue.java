@@ -0,0 +1,207 @@
+/*
+ * Copyright 2018 Marco Stornelli
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is furnished
+ * to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+ * A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF
+ * OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.balda.lifecycledata;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+
+/**
+ * Process-wide queue of {@link LifeCycleData} creations deferred until the main thread is idle.
+ * <p>
+ * Creations of all the stores run from a single {@link MessageQueue.IdleHandler} in priority
+ * order, each idle pass stops as soon as the time budget is exhausted and the remaining items
+ * wait for the next one.
+ */
+class DeferredCreationQueue implements MessageQueue.IdleHandler {
+    private static final String LOG_TAG = "DeferredCreationQueue";
+
+    static final long DEFAULT_IDLE_BUDGET = 4;
+
+    private static final DeferredCreationQueue sInstance = new DeferredCreationQueue();
+
+    private static class Item {
+        final LifeCycleDataStore store;
+        final String key;
+        final Class<? extends LifeCycleData> modelClass;
+        final LifeCycleDataProvider.Factory factory;
+        final int priority;
+        final long sequence;
+
+        Item(LifeCycleDataStore store, String key, Class<? extends LifeCycleData> modelClass,
+             LifeCycleDataProvider.Factory factory, int priority, long sequence) {
+            this.store = store;
+            this.key = key;
+            this.modelClass = modelClass;
+            this.factory = factory;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final Comparator<Item> ORDER = new Comparator<Item>() {
+        @Override
+        public int compare(Item a, Item b) {
+            if (a.priority != b.priority) {
+                return a.priority > b.priority ? -1 : 1;
+            }
+            return a.sequence < b.sequence ? -1 : (a.sequence == b.sequence ? 0 : 1);
+        }
+    };
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final PriorityQueue<Item> queue = new PriorityQueue<>(11, ORDER);
+    private final HashMap<LifeCycleDataStore, HashMap<String, Item>> items = new HashMap<>();
+    private long idleBudget = DEFAULT_IDLE_BUDGET;
+    private long sequence;
+    private boolean registered;
+
+    private DeferredCreationQueue() {
+    }
+
+    @NonNull
+    static DeferredCreationQueue getInstance() {
+        return sInstance;
+    }
+
+    void setIdleBudget(long millis) {
+        if (millis <= 0) {
+            throw new IllegalArgumentException("Idle budget must be positive");
+        }
+        idleBudget = millis;
+    }
+
+    @MainThread
+    void add(@NonNull LifeCycleDataStore store, @NonNull String key, @NonNull Class<? extends LifeCycleData>
+            modelClass, @NonNull LifeCycleDataProvider.Factory factory, int priority) {
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            throw new IllegalStateException("LifeCycleData creation can be deferred only from the main thread");
+        }
+        remove(store, key);
+        Item item = new Item(store, key, modelClass, factory, priority, sequence++);
+        HashMap<String, Item> storeItems = items.get(store);
+        if (storeItems == null) {
+            storeItems = new HashMap<>();
+            items.put(store, storeItems);
+        }
+        storeItems.put(key, item);
+        queue.add(item);
+        if (!registered) {
+            registered = true;
+            Looper.myQueue().addIdleHandler(this);
+        }
+    }
+
+    /**
+     * Removes the pending creation for the given key of the given store.
+     *
+     * @return true if a creation was pending
+     */
+    @MainThread
+    boolean remove(@NonNull LifeCycleDataStore store, @NonNull String key) {
+        HashMap<String, Item> storeItems = items.get(store);
+        if (storeItems == null) {
+            return false;
+        }
+        Item item = storeItems.remove(key);
+        if (item == null) {
+            return false;
+        }
+        if (storeItems.isEmpty()) {
+            items.remove(store);
+        }
+        queue.remove(item);
+        unregisterIfEmpty();
+        return true;
+    }
+
+    /**
+     * Removes all the pending creations of the given store.
+     */
+    @MainThread
+    void clear(@NonNull LifeCycleDataStore store) {
+        HashMap<String, Item> storeItems = items.remove(store);
+        if (storeItems == null) {
+            return;
+        }
+        queue.removeAll(storeItems.values());
+        unregisterIfEmpty();
+    }
+
+    private void unregisterIfEmpty() {
+        if (registered && queue.isEmpty()) {
+            registered = false;
+            Looper.myQueue().removeIdleHandler(this);
+        }
+    }
+
+    @Override
+    public boolean queueIdle() {
+        boolean completed = false;
+        try {
+            drain(SystemClock.uptimeMillis() + idleBudget);
+            completed = true;
+        } finally {
+            if (!completed) {
+                // MessageQueue removes the handler when it throws, register it again for the
+                // remaining items once the current idle pass is over
+                registered = false;
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!registered && !queue.isEmpty()) {
+                            registered = true;
+                            Looper.myQueue().addIdleHandler(DeferredCreationQueue.this);
+                        }
+                    }
+                });
+            }
+        }
+        registered = !queue.isEmpty();
+        return registered;
+    }
+
+    private void drain(long deadline) {
+        Item item;
+        while (SystemClock.uptimeMillis() < deadline && (item = queue.poll()) != null) {
+            HashMap<String, Item> storeItems = items.get(item.store);
+            storeItems.remove(item.key);
+            if (storeItems.isEmpty()) {
+                items.remove(item.store);
+            }
+            if (item.modelClass.isInstance(item.store.get(item.key))) {
+                continue;
+            }
+            try {
+                item.store.put(item.key, item.factory.create(item.modelClass));
+            } catch (RuntimeException e) {
+                // Keep draining, a later get() will create it again and report the error to the caller
+                Log.e(LOG_TAG, "Failed deferred creation of " + item.modelClass, e);
+            }
+        }
+    }
+}
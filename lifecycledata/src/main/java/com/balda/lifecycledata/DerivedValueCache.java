@@ -0,0 +1,264 @@
+/*
+ * Copyright 2018 Marco Stornelli
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is furnished
+ * to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+ * A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF
+ * OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.balda.lifecycledata;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+/**
+ * Memoizes values derived from the inputs of a {@link LifeCycleData}.
+ * <p>
+ * Each value is cached under a key together with the versions of the inputs used to compute it
+ * and it is recomputed only when one of those versions changes. Versions are compared with
+ * {@link Object#equals(Object)}, so they should be cheap to compare: modification counters or
+ * immutable inputs work best. Since the cache belongs to the {@link LifeCycleData}, derived
+ * values survive configuration changes and are dropped when it is cleared.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class DerivedValueCache {
+
+    /**
+     * Computes a derived value.
+     *
+     * @param <T> The type of the derived value.
+     */
+    public interface Computation<T> {
+        T compute();
+    }
+
+    /**
+     * Receives a derived value computed by {@link #getAsync(String, Executor, Computation, Callback, Object...)}.
+     *
+     * @param <T> The type of the derived value.
+     */
+    public interface Callback<T> {
+        @MainThread
+        void onResult(T value);
+    }
+
+    private static class Entry {
+        Object[] versions;
+        Object value;
+        boolean hasValue;
+        int generation;
+        Object[] pendingVersions;
+        final ArrayList<Callback<?>> pendingCallbacks = new ArrayList<>();
+
+        boolean isPending(Object[] inputVersions) {
+            return pendingVersions != null && Arrays.equals(pendingVersions, inputVersions);
+        }
+
+        void cancelPending() {
+            generation++;
+            pendingVersions = null;
+            pendingCallbacks.clear();
+        }
+
+        /**
+         * Cancels the pending computation and returns the callbacks that were waiting for it.
+         */
+        List<Callback<?>> takePending() {
+            List<Callback<?>> callbacks = new ArrayList<>(pendingCallbacks);
+            cancelPending();
+            return callbacks;
+        }
+    }
+
+    private final HashMap<String, Entry> mEntries = new HashMap<>();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private boolean mCleared;
+
+    /**
+     * Returns the value cached for the given key if it has been computed from the given input
+     * versions, otherwise computes it on the calling thread and caches it.
+     * <p>
+     * If a background computation from the same input versions is in flight, it is cancelled and
+     * the value computed here is delivered to its callbacks.
+     *
+     * @param key           The key identifying the derived value.
+     * @param computation   The computation producing the value.
+     * @param inputVersions The versions of the inputs the value depends on.
+     * @param <T>           The type of the derived value.
+     * @return The derived value.
+     */
+    @MainThread
+    public <T> T get(@NonNull String key, @NonNull Computation<T> computation, Object... inputVersions) {
+        Entry entry = entryFor(key);
+        if (entry.hasValue && Arrays.equals(entry.versions, inputVersions)) {
+            //noinspection unchecked
+            return (T) entry.value;
+        }
+        T value = computation.compute();
+        boolean samePending = entry.isPending(inputVersions);
+        // Any pending background computation is now stale
+        List<Callback<?>> callbacks = entry.takePending();
+        store(entry, value, inputVersions);
+        if (samePending) {
+            deliver(callbacks, value);
+        }
+        return value;
+    }
+
+    /**
+     * Delivers the value cached for the given key if it has been computed from the given input
+     * versions, otherwise computes it on the given executor.
+     * <p>
+     * If a computation from the same input versions is already in flight, it is not started
+     * again and its result is delivered to all the callbacks waiting for it. If the input
+     * versions differ, only the result of the latest request is cached and delivered. If the
+     * computation fails, the callbacks are not invoked and the next request starts it again.
+     *
+     * @param key           The key identifying the derived value.
+     * @param executor      The executor running the computation.
+     * @param computation   The computation producing the value, it runs on the executor.
+     * @param callback      The callback receiving the value on the main thread.
+     * @param inputVersions The versions of the inputs the value depends on.
+     * @param <T>           The type of the derived value.
+     */
+    @MainThread
+    public <T> void getAsync(@NonNull String key, @NonNull Executor executor, @NonNull final Computation<T>
+            computation, @NonNull Callback<T> callback, final Object... inputVersions) {
+        final Entry entry = entryFor(key);
+        if (entry.hasValue && Arrays.equals(entry.versions, inputVersions)) {
+            if (entry.pendingVersions != null && !entry.isPending(inputVersions)) {
+                // The latest request is satisfied by the cache, the pending result would be stale
+                entry.cancelPending();
+            }
+            //noinspection unchecked
+            callback.onResult((T) entry.value);
+            return;
+        }
+        if (entry.isPending(inputVersions)) {
+            entry.pendingCallbacks.add(callback);
+            return;
+        }
+        entry.cancelPending();
+        final int generation = entry.generation;
+        executor.execute(new Runnable() {
+            @WorkerThread
+            @Override
+            public void run() {
+                T value = null;
+                boolean computed = false;
+                try {
+                    value = computation.compute();
+                    computed = true;
+                } finally {
+                    final T result = value;
+                    final boolean success = computed;
+                    mHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (mCleared || entry.generation != generation) {
+                                return;
+                            }
+                            List<Callback<?>> callbacks = entry.takePending();
+                            if (success) {
+                                store(entry, result, inputVersions);
+                                deliver(callbacks, result);
+                            }
+                        }
+                    });
+                }
+            }
+        });
+        // Only mark the computation as pending once the executor has accepted it
+        entry.pendingVersions = inputVersions.clone();
+        entry.pendingCallbacks.add(callback);
+    }
+
+    /**
+     * Returns the last value cached for the given key, regardless of its input versions, or null
+     * if there isn't any.
+     */
+    @Nullable
+    @MainThread
+    public <T> T peek(@NonNull String key) {
+        Entry entry = mEntries.get(key);
+        //noinspection unchecked
+        return entry != null ? (T) entry.value : null;
+    }
+
+    /**
+     * Drops the value cached for the given key and discards its pending computations.
+     */
+    @MainThread
+    public void invalidate(@NonNull String key) {
+        Entry entry = mEntries.remove(key);
+        if (entry != null) {
+            entry.cancelPending();
+        }
+    }
+
+    /**
+     * Drops all the cached values and discards all the pending computations.
+     */
+    @MainThread
+    public void invalidateAll() {
+        for (Entry entry : mEntries.values()) {
+            entry.cancelPending();
+        }
+        mEntries.clear();
+    }
+
+    /**
+     * Tears down the cache when its {@link LifeCycleData} is cleared, it can't be used anymore.
+     */
+    @MainThread
+    void clear() {
+        mCleared = true;
+        invalidateAll();
+        mHandler.removeCallbacksAndMessages(null);
+    }
+
+    private Entry entryFor(String key) {
+        if (mCleared) {
+            throw new IllegalStateException("Can't use a DerivedValueCache after it has been cleared");
+        }
+        Entry entry = mEntries.get(key);
+        if (entry == null) {
+            entry = new Entry();
+            mEntries.put(key, entry);
+        }
+        return entry;
+    }
+
+    private static <T> void deliver(List<Callback<?>> callbacks, T value) {
+        for (Callback<?> callback : callbacks) {
+            //noinspection unchecked
+            ((Callback<T>) callback).onResult(value);
+        }
+    }
+
+    private static void store(Entry entry, Object value, Object[] versions) {
+        entry.value = value;
+        entry.versions = versions.clone();
+        entry.hasValue = true;
+    }
+}
@@ -40,16 +40,29 @@ public class HolderFragment extends Fragment implements LifeCycleDataStoreOwner
 
     public static final String HOLDER_TAG = "HolderFragment";
     private LifeCycleDataStore lifeCycleDataStore = new LifeCycleDataStore();
+    private boolean attached;
 
     @SuppressWarnings("deprecation")
     public HolderFragment() {
         setRetainInstance(true);
     }
 
+    @SuppressWarnings("deprecation")
+    @Override
+    public void onAttach(Activity activity) {
+        super.onAttach(activity);
+        // A retained fragment is attached again to every new instance of its owner
+        if (attached) {
+            lifeCycleDataStore.onOwnerRecreated();
+        }
+        attached = true;
+    }
+
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         sHolderFragmentManager.holderFragmentCreated(this);
+        LifeCycleDataStoreRegistry.register(this);
     }
 
     @Override
@@ -60,9 +73,22 @@ public class HolderFragment extends Fragment implements LifeCycleDataStoreOwner
     @Override
     public void onDestroy() {
         super.onDestroy();
+        LifeCycleDataStoreRegistry.unregister(this);
         lifeCycleDataStore.clear();
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        lifeCycleDataStore.trimPools(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        lifeCycleDataStore.trimPools(TRIM_MEMORY_COMPLETE);
+    }
+
     static HolderFragment holderFragmentFor(Activity activity) {
         return sHolderFragmentManager.holderFragmentFor(activity);
     }
@@ -72,6 +98,24 @@ public class HolderFragment extends Fragment implements LifeCycleDataStoreOwner
         return sHolderFragmentManager.holderFragmentFor(fragment);
     }
 
+    /**
+     * Returns the class name and identity of the activity or fragment this holder is attached to.
+     */
+    @NonNull
+    String getOwnerName() {
+        Fragment parentFragment = getParentFragment();
+        if (parentFragment != null) {
+            return describe(parentFragment);
+        }
+        Activity activity = getActivity();
+        return activity != null ? describe(activity) : "<detached>@" + Integer.toHexString(System.identityHashCode
+                (this));
+    }
+
+    private static String describe(Object owner) {
+        return owner.getClass().getName() + "@" + Integer.toHexString(System.identityHashCode(owner));
+    }
+
     @NonNull
     @Override
     public LifeCycleDataStore getLifeCycleDataStore() {
@@ -17,7 +17,12 @@
  */
 package com.balda.lifecycledata;
 
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+
 public abstract class LifeCycleData {
+    private DerivedValueCache mDerivedValues;
+
     /**
      * This method will be called when this LifeCycleData is no longer used and will be destroyed.
      * <p>
@@ -27,4 +32,27 @@ public abstract class LifeCycleData {
     @SuppressWarnings("WeakerAccess")
     protected void onCleared() {
     }
+
+    /**
+     * Returns the cache used to memoize values derived from the inputs of this LifeCycleData.
+     * <p>
+     * The cache is dropped when this LifeCycleData is cleared, after {@link #onCleared()}.
+     */
+    @NonNull
+    @MainThread
+    protected final DerivedValueCache getDerivedValues() {
+        if (mDerivedValues == null) {
+            mDerivedValues = new DerivedValueCache();
+        }
+        return mDerivedValues;
+    }
+
+    @MainThread
+    final void clear() {
+        onCleared();
+        if (mDerivedValues != null) {
+            mDerivedValues.clear();
+            mDerivedValues = null;
+        }
+    }
 }
@@ -87,11 +87,7 @@ public class LifeCycleDataProvider {
      */
     @NonNull
     public <T extends LifeCycleData> T get(@NonNull Class<T> modelClass) {
-        String canonicalName = modelClass.getCanonicalName();
-        if (canonicalName == null) {
-            throw new IllegalArgumentException("Local and anonymous classes can not be ViewModels");
-        }
-        return get(DEFAULT_KEY + ":" + canonicalName, modelClass);
+        return get(defaultKey(modelClass), modelClass);
     }
 
     /**
@@ -118,12 +114,68 @@ public class LifeCycleDataProvider {
             return (T) viewModel;
         }
 
+        DeferredCreationQueue.getInstance().remove(lifeCycleDataStore, key);
         viewModel = factory.create(modelClass);
         lifeCycleDataStore.put(key, viewModel);
         //noinspection unchecked
         return (T) viewModel;
     }
 
+    /**
+     * Defers the creation of a LifeCycleData until the main thread is idle.
+     * <p>
+     * It is meant for LifeCycleData that must be created on the main thread but are not needed
+     * before the first frame. Deferred creations run in priority order, within a time budget for
+     * each idle pass, see {@link #setDeferredIdleBudget(long)}. Calling {@link #get(Class)} before
+     * the creation has run creates the LifeCycleData immediately and removes it from the queue.
+     *
+     * @param modelClass The class of the LifeCycleData to create.
+     * @param priority   The priority of the creation, higher values are created first.
+     * @param <T>        The type parameter for the LifeCycleData.
+     */
+    @MainThread
+    public <T extends LifeCycleData> void defer(@NonNull Class<T> modelClass, int priority) {
+        defer(defaultKey(modelClass), modelClass, priority);
+    }
+
+    /**
+     * Defers the creation of a LifeCycleData until the main thread is idle.
+     * <p>
+     * Calling {@link #get(String, Class)} with the same key before the creation has run creates
+     * the LifeCycleData immediately and removes it from the queue. Nothing happens if a
+     * LifeCycleData of the given class is already stored with the given key.
+     *
+     * @param key        The key to use to identify the LifeCycleData.
+     * @param modelClass The class of the LifeCycleData to create.
+     * @param priority   The priority of the creation, higher values are created first.
+     * @param <T>        The type parameter for the LifeCycleData.
+     */
+    @MainThread
+    public <T extends LifeCycleData> void defer(@NonNull String key, @NonNull Class<T> modelClass, int priority) {
+        if (modelClass.isInstance(lifeCycleDataStore.get(key))) {
+            return;
+        }
+        DeferredCreationQueue.getInstance().add(lifeCycleDataStore, key, modelClass, factory, priority);
+    }
+
+    /**
+     * Sets how long, in milliseconds, deferred creations of all the stores can run for each idle
+     * pass of the main thread. The default is 4 ms.
+     *
+     * @param millis The time budget, must be positive.
+     */
+    public static void setDeferredIdleBudget(long millis) {
+        DeferredCreationQueue.getInstance().setIdleBudget(millis);
+    }
+
+    private static String defaultKey(Class<?> modelClass) {
+        String canonicalName = modelClass.getCanonicalName();
+        if (canonicalName == null) {
+            throw new IllegalArgumentException("Local and anonymous classes can not be ViewModels");
+        }
+        return DEFAULT_KEY + ":" + canonicalName;
+    }
+
     /**
      * Simple factory, which calls empty constructor on the give class.
      */
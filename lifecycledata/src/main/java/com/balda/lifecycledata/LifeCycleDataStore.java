@@ -17,31 +17,109 @@
  */
 package com.balda.lifecycledata;
 
+import android.content.ComponentCallbacks2;
+import android.os.SystemClock;
+
 import java.util.HashMap;
+import java.util.Set;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
 
 public class LifeCycleDataStore {
 
     private final HashMap<String, LifeCycleData> mMap = new HashMap<>();
+    private final HashMap<String, Long> mCreationTimes = new HashMap<>();
+    private final HashMap<String, ObjectPool<?>> mPools = new HashMap<>();
 
     final void put(String key, LifeCycleData data) {
         LifeCycleData oldViewModel = mMap.get(key);
         if (oldViewModel != null) {
-            oldViewModel.onCleared();
+            oldViewModel.clear();
         }
         mMap.put(key, data);
+        mCreationTimes.put(key, SystemClock.elapsedRealtime());
     }
 
     final LifeCycleData get(String key) {
         return mMap.get(key);
     }
 
+    final Set<String> keys() {
+        return mMap.keySet();
+    }
+
+    /**
+     * Returns the {@link SystemClock#elapsedRealtime()} at which the entry for the given key was
+     * stored, or -1 if there is no such entry.
+     */
+    final long getCreationTime(String key) {
+        Long time = mCreationTimes.get(key);
+        return time != null ? time : -1;
+    }
+
+    /**
+     * Returns the pool stored with the given key, creating it if it doesn't exist yet.
+     * <p>
+     * The pool lives as long as this store, so its objects survive configuration changes.
+     *
+     * @param key     The key to use to identify the pool.
+     * @param type    The class of the pooled objects.
+     * @param maxSize The maximum number of idle objects kept by the pool, it is ignored if the
+     *                pool already exists.
+     * @param factory The factory used to create, reset and discard the objects, it is ignored
+     *                if the pool already exists.
+     * @param <T>     The type of the pooled objects.
+     * @return The pool for the given key.
+     */
+    @NonNull
+    @MainThread
+    public final <T> ObjectPool<T> getPool(@NonNull String key, @NonNull Class<T> type, int maxSize, @NonNull
+            ObjectPool.Factory<T> factory) {
+        ObjectPool<?> pool = mPools.get(key);
+        if (pool == null) {
+            pool = new ObjectPool<>(type, maxSize, factory);
+            mPools.put(key, pool);
+        } else if (pool.getType() != type) {
+            throw new IllegalArgumentException("Pool " + key + " holds " + pool.getType() + ", not " + type);
+        }
+        //noinspection unchecked
+        return (ObjectPool<T>) pool;
+    }
+
+    final void onOwnerRecreated() {
+        for (ObjectPool<?> pool : mPools.values()) {
+            pool.onOwnerRecreated();
+        }
+    }
+
+    /**
+     * Releases idle pooled objects according to the given {@link ComponentCallbacks2} trim level.
+     */
+    final void trimPools(int level) {
+        for (ObjectPool<?> pool : mPools.values()) {
+            if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE
+                    || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+                pool.trimToSize(0);
+            } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+                pool.trimToSize(pool.getIdleCount() / 2);
+            }
+        }
+    }
+
     /**
      *  Clears internal storage and notifies ViewModels that they are no longer used.
      */
     public final void clear() {
+        DeferredCreationQueue.getInstance().clear(this);
         for (LifeCycleData vm : mMap.values()) {
-            vm.onCleared();
+            vm.clear();
         }
         mMap.clear();
+        mCreationTimes.clear();
+        for (ObjectPool<?> pool : mPools.values()) {
+            pool.clear();
+        }
+        mPools.clear();
     }
 }
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2018 Marco Stornelli
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is furnished
+ * to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+ * A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF
+ * OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.balda.lifecycledata;
+
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+
+/**
+ * Process-wide registry of the live {@link LifeCycleDataStore}s held by {@link HolderFragment}s.
+ * <p>
+ * It is meant for diagnostics only: {@link #dump()} returns a snapshot of every live store with
+ * its entries, that can be logged or shown in a debug screen.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class LifeCycleDataStoreRegistry {
+    /**
+     * Size reported for entries that don't implement {@link SizeReporter}.
+     */
+    public static final long UNKNOWN_SIZE = -1;
+
+    private static final Map<HolderFragment, LifeCycleDataStore> sStores = new LinkedHashMap<>();
+
+    private LifeCycleDataStoreRegistry() {
+    }
+
+    @MainThread
+    static void register(@NonNull HolderFragment owner) {
+        sStores.put(owner, owner.getLifeCycleDataStore());
+    }
+
+    @MainThread
+    static void unregister(@NonNull HolderFragment owner) {
+        sStores.remove(owner);
+    }
+
+    /**
+     * Returns the number of live stores.
+     */
+    @MainThread
+    public static int getStoreCount() {
+        return sStores.size();
+    }
+
+    /**
+     * Returns a snapshot of all the live stores.
+     *
+     * @return a list of {@link StoreInfo}, one for each live store
+     */
+    @NonNull
+    @MainThread
+    public static List<StoreInfo> dump() {
+        long now = SystemClock.elapsedRealtime();
+        List<StoreInfo> stores = new ArrayList<>(sStores.size());
+        for (Map.Entry<HolderFragment, LifeCycleDataStore> entry : sStores.entrySet()) {
+            LifeCycleDataStore store = entry.getValue();
+            List<EntryInfo> entries = new ArrayList<>();
+            for (String key : store.keys()) {
+                LifeCycleData data = store.get(key);
+                long size = data instanceof SizeReporter ? ((SizeReporter) data).getRetainedSize() : UNKNOWN_SIZE;
+                entries.add(new EntryInfo(key, data.getClass(), size, now - store.getCreationTime(key)));
+            }
+            stores.add(new StoreInfo(entry.getKey().getOwnerName(), entries));
+        }
+        return stores;
+    }
+
+    /**
+     * Snapshot of a single live store.
+     */
+    public static class StoreInfo {
+        private final String ownerName;
+        private final List<EntryInfo> entries;
+
+        StoreInfo(@NonNull String ownerName, @NonNull List<EntryInfo> entries) {
+            this.ownerName = ownerName;
+            this.entries = Collections.unmodifiableList(entries);
+        }
+
+        /**
+         * Returns the class name and identity hash code of the activity or fragment owning the
+         * store, e.g. {@code com.example.MainActivity@1b6d3586}.
+         */
+        @NonNull
+        public String getOwnerName() {
+            return ownerName;
+        }
+
+        @NonNull
+        public List<EntryInfo> getEntries() {
+            return entries;
+        }
+
+        /**
+         * Returns the sum of the sizes reported by the entries, entries with unknown size are
+         * not counted.
+         */
+        public long getTotalSize() {
+            long total = 0;
+            for (EntryInfo entry : entries) {
+                if (entry.getSize() != UNKNOWN_SIZE) {
+                    total += entry.getSize();
+                }
+            }
+            return total;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(ownerName).append(" (").append(entries.size()).append(" entries, ").append(getTotalSize())
+                    .append(" bytes)");
+            for (EntryInfo entry : entries) {
+                sb.append("\n  ").append(entry);
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Snapshot of a single {@link LifeCycleData} held by a store.
+     */
+    public static class EntryInfo {
+        private final String key;
+        private final Class<? extends LifeCycleData> modelClass;
+        private final long size;
+        private final long age;
+
+        EntryInfo(@NonNull String key, @NonNull Class<? extends LifeCycleData> modelClass, long size, long age) {
+            this.key = key;
+            this.modelClass = modelClass;
+            this.size = size;
+            this.age = age;
+        }
+
+        @NonNull
+        public String getKey() {
+            return key;
+        }
+
+        @NonNull
+        public Class<? extends LifeCycleData> getModelClass() {
+            return modelClass;
+        }
+
+        /**
+         * Returns the size reported by the entry or {@link #UNKNOWN_SIZE}.
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Returns the time in milliseconds since the entry has been stored.
+         */
+        public long getAge() {
+            return age;
+        }
+
+        @Override
+        public String toString() {
+            return key + " " + modelClass.getName() + " size=" + (size == UNKNOWN_SIZE ? "?" : size) + " age=" +
+                    age + "ms";
+        }
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright 2018 Marco Stornelli
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is furnished
+ * to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+ * A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF
+ * OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.balda.lifecycledata;
+
+import java.util.ArrayDeque;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Pool of reusable objects owned by a {@link LifeCycleDataStore}.
+ * <p>
+ * Since the store is retained across configuration changes, objects released before a
+ * recreation can be acquired again by the new activity or fragment instead of being allocated.
+ * Idle objects are trimmed when memory is low and discarded when the store is cleared. The pool
+ * is thread safe.
+ *
+ * @param <T> The type of the pooled objects.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class ObjectPool<T> {
+
+    /**
+     * Creates, resets and discards the objects of a pool.
+     *
+     * @param <T> The type of the pooled objects.
+     */
+    public abstract static class Factory<T> {
+        /**
+         * Creates a new object, called when the pool has no idle object to reuse.
+         */
+        @NonNull
+        public abstract T create();
+
+        /**
+         * Called when an object is released to the pool and kept, before it can be acquired again.
+         */
+        public void reset(@NonNull T object) {
+        }
+
+        /**
+         * Called when an object is dropped by the pool, e.g. to recycle a Bitmap.
+         */
+        public void discard(@NonNull T object) {
+        }
+    }
+
+    private final Class<T> type;
+    private final Factory<T> factory;
+    private final ArrayDeque<T> idle = new ArrayDeque<>();
+    private int maxSize;
+    private boolean cleared;
+
+    private long acquired;
+    private long reused;
+    private long released;
+    private long discarded;
+    private long recreations;
+    private long reusedAcrossRecreations;
+    // Number of idle objects released before the last recreation of the owner, they sit at the
+    // tail of the deque since acquire() and release() work on its head
+    private int carriedOver;
+
+    ObjectPool(@NonNull Class<T> type, int maxSize, @NonNull Factory<T> factory) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Pool size can't be negative");
+        }
+        this.type = type;
+        this.maxSize = maxSize;
+        this.factory = factory;
+    }
+
+    @NonNull
+    Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * Returns an idle object if there is one, otherwise a new one.
+     */
+    @NonNull
+    public T acquire() {
+        T object;
+        synchronized (this) {
+            acquired++;
+            if (!idle.isEmpty() && idle.size() <= carriedOver) {
+                carriedOver--;
+                reusedAcrossRecreations++;
+            }
+            object = idle.poll();
+            if (object != null) {
+                reused++;
+                return object;
+            }
+        }
+        return factory.create();
+    }
+
+    /**
+     * Returns an object to the pool. The object is reset and kept if the pool is not full,
+     * otherwise it is discarded without being reset. The caller must not use the object anymore.
+     *
+     * @param object an object previously returned by {@link #acquire()}
+     */
+    public void release(@NonNull T object) {
+        boolean keep;
+        synchronized (this) {
+            checkNotPooled(object);
+            released++;
+            keep = !cleared && idle.size() < maxSize;
+            if (!keep) {
+                discarded++;
+            }
+        }
+        if (keep) {
+            try {
+                factory.reset(object);
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    discarded++;
+                }
+                factory.discard(object);
+                throw e;
+            }
+            synchronized (this) {
+                // The pool may have been trimmed, cleared or filled while resetting
+                checkNotPooled(object);
+                if (!cleared && idle.size() < maxSize) {
+                    idle.push(object);
+                    return;
+                }
+                discarded++;
+            }
+        }
+        factory.discard(object);
+    }
+
+    private void checkNotPooled(T object) {
+        for (T pooled : idle) {
+            if (pooled == object) {
+                throw new IllegalStateException("Already in the pool!");
+            }
+        }
+    }
+
+    /**
+     * Changes the maximum number of idle objects kept by the pool, trimming it if needed.
+     */
+    public void setMaxSize(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Pool size can't be negative");
+        }
+        synchronized (this) {
+            this.maxSize = maxSize;
+        }
+        trimToSize(maxSize);
+    }
+
+    /**
+     * Discards idle objects until at most {@code size} are left.
+     */
+    public void trimToSize(int size) {
+        ArrayDeque<T> dropped = new ArrayDeque<>();
+        synchronized (this) {
+            while (idle.size() > size) {
+                dropped.add(idle.removeLast());
+            }
+            carriedOver = Math.min(carriedOver, idle.size());
+            discarded += dropped.size();
+        }
+        for (T object : dropped) {
+            factory.discard(object);
+        }
+    }
+
+    /**
+     * Returns the number of idle objects.
+     */
+    public synchronized int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Returns a snapshot of the usage counters of this pool.
+     */
+    @NonNull
+    public synchronized Stats getStats() {
+        return new Stats(acquired, reused, released, discarded, recreations, reusedAcrossRecreations);
+    }
+
+    /**
+     * Called when the activity or fragment owning the store has been recreated, the objects idle
+     * at this point have been released by the previous instance.
+     */
+    synchronized void onOwnerRecreated() {
+        recreations++;
+        carriedOver = idle.size();
+    }
+
+    void clear() {
+        synchronized (this) {
+            cleared = true;
+        }
+        trimToSize(0);
+    }
+
+    /**
+     * Usage counters of a pool.
+     */
+    public static class Stats {
+        private final long acquired;
+        private final long reused;
+        private final long released;
+        private final long discarded;
+        private final long recreations;
+        private final long reusedAcrossRecreations;
+
+        Stats(long acquired, long reused, long released, long discarded, long recreations, long
+                reusedAcrossRecreations) {
+            this.acquired = acquired;
+            this.reused = reused;
+            this.released = released;
+            this.discarded = discarded;
+            this.recreations = recreations;
+            this.reusedAcrossRecreations = reusedAcrossRecreations;
+        }
+
+        public long getAcquired() {
+            return acquired;
+        }
+
+        /**
+         * Returns the number of acquisitions served by an idle object.
+         */
+        public long getReused() {
+            return reused;
+        }
+
+        /**
+         * Returns the number of acquisitions that required a new object.
+         */
+        public long getCreated() {
+            return acquired - reused;
+        }
+
+        public long getReleased() {
+            return released;
+        }
+
+        public long getDiscarded() {
+            return discarded;
+        }
+
+        /**
+         * Returns the fraction of acquisitions served by an idle object, from 0 to 1.
+         */
+        public float getReuseRate() {
+            return acquired == 0 ? 0f : (float) reused / acquired;
+        }
+
+        /**
+         * Returns how many times the owner of the store has been recreated, e.g. by a rotation.
+         */
+        public long getRecreations() {
+            return recreations;
+        }
+
+        /**
+         * Returns the number of acquisitions served by an object released before the last
+         * recreation of the owner, i.e. allocations saved by the configuration change.
+         */
+        public long getReusedAcrossRecreations() {
+            return reusedAcrossRecreations;
+        }
+
+        /**
+         * Returns the fraction of acquisitions served by an object released before the last
+         * recreation of the owner, from 0 to 1.
+         */
+        public float getCrossRecreationReuseRate() {
+            return acquired == 0 ? 0f : (float) reusedAcrossRecreations / acquired;
+        }
+
+        @Override
+        public String toString() {
+            return "acquired=" + acquired + " reused=" + reused + " released=" + released + " discarded=" +
+                    discarded + " reuseRate=" + getReuseRate() + " recreations=" + recreations +
+                    " reusedAcrossRecreations=" + reusedAcrossRecreations;
+        }
+    }
+}